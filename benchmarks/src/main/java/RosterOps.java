@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+// bench.Roster over the app's StudentStore (see Roster for why this class is
+// in the default package)
+public class RosterOps implements bench.Roster {
+    private final StudentGradeTrackerFullFinal.StudentStore store = new StudentGradeTrackerFullFinal.StudentStore();
+    private final StudentGradeTrackerFullFinal.IntList hits = new StudentGradeTrackerFullFinal.IntList();
+
+    @Override
+    public int[] fill(int n, long seed) {
+        Random rnd = new Random(seed);
+        // same path as loading a saved roster: index names on the first search
+        store.deferNameIndex();
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            int r = store.addNew("student " + Integer.toString(rnd.nextInt() & Integer.MAX_VALUE, 36),
+                    rnd.nextInt(1001) / 10.0);
+            ids[i] = store.idAt(r);
+        }
+        return ids;
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public int add(String name, double score) {
+        return store.idAt(store.addNew(name, score));
+    }
+
+    @Override
+    public void update(int id, String name, double score) {
+        store.set(store.rowOf(id), name, score);
+    }
+
+    @Override
+    public void delete(int id) {
+        store.removeAt(store.rowOf(id));
+    }
+
+    @Override
+    public int rowOf(int id) {
+        return store.rowOf(id);
+    }
+
+    @Override
+    public int searchName(String query) {
+        store.searchName(query, hits);
+        return hits.size();
+    }
+
+    @Override
+    public double summary() {
+        StudentGradeTrackerFullFinal.ScoreStats stats = store.stats;
+        StudentGradeTrackerFullFinal.Student hi = store.get(store.rowOf(stats.highestId()));
+        StudentGradeTrackerFullFinal.Student lo = store.get(store.rowOf(stats.lowestId()));
+        return stats.count() + stats.average() + hi.score + lo.score;
+    }
+
+    @Override
+    public double richStats(double score) {
+        StudentGradeTrackerFullFinal.ScoreStats stats = store.stats;
+        return stats.median() + stats.percentile(90) + stats.bandCounts()[0] + stats.rank(score);
+    }
+
+    @Override
+    public int report(String filter) {
+        return store.report(StudentGradeTrackerFullFinal.ReportQuery.parse(filter)).count;
+    }
+
+    @Override
+    public void exportCsv(OutputStream out) throws IOException {
+        try (StudentGradeTrackerFullFinal.ExportWriter w = new StudentGradeTrackerFullFinal.ExportWriter(out)) {
+            StudentGradeTrackerFullFinal.Exports.writeAllCsv(store.snapshot(), w, (done, total) -> true);
+        }
+    }
+
+    @Override
+    public void exportTxt(OutputStream out) throws IOException {
+        try (StudentGradeTrackerFullFinal.ExportWriter w = new StudentGradeTrackerFullFinal.ExportWriter(out)) {
+            StudentGradeTrackerFullFinal.Exports.writeAllTxt(store.snapshot(), w, (done, total) -> true);
+        }
+    }
+}
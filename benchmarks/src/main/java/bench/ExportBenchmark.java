@@ -0,0 +1,50 @@
+package bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Export All CSV / TXT (writeAllCsv, writeAllTxt) including the snapshot, into
+// a stream that counts and drops the bytes, so disk speed does not count
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ExportBenchmark {
+    static final class Discard extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    @Benchmark
+    public long csv(RosterState s) throws IOException {
+        Discard out = new Discard();
+        s.roster.exportCsv(out);
+        return out.bytes;
+    }
+
+    @Benchmark
+    public long txt(RosterState s) throws IOException {
+        Discard out = new Discard();
+        s.roster.exportTxt(out);
+        return out.bytes;
+    }
+}
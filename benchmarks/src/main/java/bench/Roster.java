@@ -0,0 +1,52 @@
+package bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// The app's classes live in the default package, which a package (and so a JMH
+// benchmark) cannot import. The benchmarks drive the app through this
+// interface instead; RosterOps in the default package implements it, and the
+// calls stay monomorphic, so the JIT inlines them like direct calls.
+public interface Roster {
+    // a new, empty in-memory store (no journal)
+    static Roster create() {
+        try {
+            return (Roster) Class.forName("RosterOps").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // adds n students with random names ("student xxxxx") and scores 0-100 in
+    // 0.1 steps; returns their ids
+    int[] fill(int n, long seed);
+
+    int size();
+
+    // returns the new student's id
+    int add(String name, double score);
+
+    void update(int id, String name, double score);
+
+    void delete(int id);
+
+    // store row of id, or -1 (findById without the copy)
+    int rowOf(int id);
+
+    // hits of a name substring search (the trigram index for 3+ chars)
+    int searchName(String query);
+
+    // what refreshSummary reads: count, average, highest and lowest
+    double summary();
+
+    // median, 90th percentile, grade bands and the rank of a score
+    double richStats(double score);
+
+    // matches of a report filter such as "score:90- top:10"
+    int report(String filter);
+
+    // Export All CSV / TXT of a fresh snapshot into out
+    void exportCsv(OutputStream out) throws IOException;
+
+    void exportTxt(OutputStream out) throws IOException;
+}
@@ -0,0 +1,36 @@
+package bench;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// a roster of `size` random students, built once per trial, plus a ring of
+// random existing ids for the lookup/update benchmarks
+@State(Scope.Benchmark)
+public class RosterState {
+    @Param({ "1000", "100000", "10000000" })
+    public int size;
+
+    public Roster roster;
+    private int[] picks;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void build() {
+        roster = Roster.create();
+        int[] ids = roster.fill(size, 42);
+        Random rnd = new Random(7);
+        picks = new int[4096];
+        for (int i = 0; i < picks.length; i++)
+            picks[i] = ids[rnd.nextInt(ids.length)];
+    }
+
+    // an id present in the roster (benchmarks that delete put it back)
+    public int nextId() {
+        return picks[next++ & (picks.length - 1)];
+    }
+}
@@ -0,0 +1,46 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// name search (doSearch): 3+ chars go through the trigram index, shorter
+// queries scan every name
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class SearchBenchmark {
+    @Setup(Level.Trial)
+    public void buildIndex(RosterState s) {
+        // the index is built lazily by the first search; keep that out of the runs
+        s.roster.searchName("abc");
+    }
+
+    @Benchmark
+    public int indexed3(RosterState s) {
+        return s.roster.searchName("k7q");
+    }
+
+    @Benchmark
+    public int indexed5(RosterState s) {
+        return s.roster.searchName("t k7q");
+    }
+
+    @Benchmark
+    public int scan2(RosterState s) {
+        return s.roster.searchName("zz");
+    }
+}
@@ -0,0 +1,40 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// aggregates: refreshSummary's figures, the report statistics and filtered
+// report queries (doGetReport)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class StatsBenchmark {
+    @Benchmark
+    public double summary(RosterState s) {
+        return s.roster.summary();
+    }
+
+    @Benchmark
+    public double medianPercentileBandsRank(RosterState s) {
+        return s.roster.richStats(72.5);
+    }
+
+    @Benchmark
+    public int reportTop10(RosterState s) {
+        return s.roster.report("top:10");
+    }
+
+    @Benchmark
+    public int reportScoreRange(RosterState s) {
+        return s.roster.report("score:99.5-100");
+    }
+}
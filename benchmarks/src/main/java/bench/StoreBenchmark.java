@@ -0,0 +1,49 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// add / update / delete and id lookup (doAdd, doUpdate, doDeleteSelected, findById)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class StoreBenchmark {
+    private double score;
+
+    // a pair keeps the roster at its nominal size
+    @Benchmark
+    public int addThenDelete(RosterState s) {
+        int id = s.roster.add("bench student", 77.5);
+        s.roster.delete(id);
+        return id;
+    }
+
+    // alternates two names so the name pool and index really change
+    @Benchmark
+    public void update(RosterState s) {
+        score = score >= 100 ? 0 : score + 0.5;
+        s.roster.update(s.nextId(), score < 50 ? "bench alpha" : "bench omega", score);
+    }
+
+    @Benchmark
+    public int lookupId(RosterState s) {
+        return s.roster.rowOf(s.nextId());
+    }
+
+    @Benchmark
+    public int lookupMissingId(RosterState s) {
+        return s.roster.rowOf(-s.nextId());
+    }
+}